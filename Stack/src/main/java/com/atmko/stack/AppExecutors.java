@@ -17,10 +17,15 @@ public class AppExecutors {
     private static final Object LOCK = new Object();
     private static AppExecutors sInstance;
     private final Executor diskIO;
+    private final Executor viewInflation;
+    private final Executor archiveIO;
     private final Executor mainThread;
 
-    private AppExecutors(Executor diskIO, Executor mainThread) {
+    private AppExecutors(Executor diskIO, Executor viewInflation, Executor archiveIO,
+                         Executor mainThread) {
         this.diskIO = diskIO;
+        this.viewInflation = viewInflation;
+        this.archiveIO = archiveIO;
         this.mainThread = mainThread;
     }
 
@@ -28,6 +33,7 @@ public class AppExecutors {
         if (sInstance == null) {
             synchronized (LOCK) {
                 sInstance = new AppExecutors(Executors.newSingleThreadExecutor(),
+                        Executors.newSingleThreadExecutor(), Executors.newSingleThreadExecutor(),
                         new MainThreadExecutor());
             }
         }
@@ -38,6 +44,14 @@ public class AppExecutors {
         return diskIO;
     }
 
+    Executor viewInflation() {
+        return viewInflation;
+    }
+
+    Executor archiveIO() {
+        return archiveIO;
+    }
+
     Executor mainThread() {
         return mainThread;
     }
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2019 Aayat Mimiko
+ */
+
+package com.atmko.stack;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+//keeps pages of evicted blocks as compressed bytes so they can be recalled without the loader.
+//encoding and decoding run on the archive executor, in the order they were requested
+class PageArchive {
+    private final long mMaxBytes;
+    private final Stack.PageCodec mPageCodec;
+    //access ordered so least recently used pages are dropped first
+    private final LinkedHashMap<Integer, byte[]> mArchivedPages;
+    //pages waiting to be encoded. only touched on the main thread
+    private final Set<Integer> mPendingPages;
+    private long mArchivedBytes;
+    //increased whenever archived pages are thrown away so pages still being encoded are dropped
+    private int mGeneration;
+    //increased on clear so pages recalled for an older data set are dropped
+    private int mDataSetGeneration;
+    //set once a page has been encoded. only touched on the archive executor
+    private boolean mHasEncodedPage;
+    //set if the first page cannot be encoded. codec cannot handle these items, so stop archiving
+    private volatile boolean mIsDisabled;
+
+    interface OnPageRecalledListener {
+        //called on the main thread. dataList is null if the page could not be recalled
+        void onPageRecalled(List dataList);
+    }
+
+    PageArchive(long maxBytes, Stack.PageCodec pageCodec) {
+        this.mMaxBytes = maxBytes;
+        this.mPageCodec = pageCodec;
+        this.mArchivedPages = new LinkedHashMap<>(16, 0.75f, true);
+        this.mPendingPages = new HashSet<>();
+    }
+
+    //called on the main thread
+    boolean hasPage(int page) {
+        if (mIsDisabled) return false;
+        if (mPendingPages.contains(page)) return true;
+
+        synchronized (this) {
+            return mArchivedPages.containsKey(page);
+        }
+    }
+
+    //called on the main thread
+    void archivePage(final int page, final List dataList) {
+        if (mIsDisabled) return;
+
+        mPendingPages.add(page);
+
+        final int generation = getGeneration();
+
+        AppExecutors.getInstance().archiveIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    byte[] compressedPage = compress(mPageCodec.encode(dataList));
+                    mHasEncodedPage = true;
+
+                    putCompressedPage(page, compressedPage, generation);
+
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+
+                    //fail fast instead of encoding every evicted page only for it to fail.
+                    //page is left to the loader either way
+                    if (!mHasEncodedPage) disable();
+
+                } finally {
+                    AppExecutors.getInstance().mainThread().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            mPendingPages.remove(page);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    //called on the main thread
+    void recallPage(final int page, final OnPageRecalledListener onPageRecalledListener) {
+        final int dataSetGeneration = getDataSetGeneration();
+
+        AppExecutors.getInstance().archiveIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                List dataList = null;
+
+                try {
+                    byte[] compressedPage = getCompressedPage(page);
+
+                    //page may have been dropped to stay within budget or released
+                    if (compressedPage != null) {
+                        dataList = mPageCodec.decode(decompress(compressedPage));
+                    }
+
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+
+                } finally {
+                    postRecalledPage(dataList, dataSetGeneration, onPageRecalledListener);
+                }
+            }
+        });
+    }
+
+    private void postRecalledPage(final List dataList, final int dataSetGeneration,
+                                  final OnPageRecalledListener onPageRecalledListener) {
+        AppExecutors.getInstance().mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                //archive was cleared for a new data set while page was being recalled
+                if (dataSetGeneration != getDataSetGeneration()) return;
+
+                onPageRecalledListener.onPageRecalled(dataList);
+            }
+        });
+    }
+
+    //called on the main thread when the data set changes.
+    //recalls in flight are dropped since their pages belong to the old data set
+    void clear() {
+        release();
+
+        synchronized (this) {
+            mDataSetGeneration += 1;
+        }
+    }
+
+    //called on the main thread. throws away archived pages while the data set stays the same.
+    //recalls in flight come back with null so their pages are fetched with the loader
+    void release() {
+        mPendingPages.clear();
+
+        synchronized (this) {
+            mArchivedPages.clear();
+            mArchivedBytes = 0;
+            mGeneration += 1;
+        }
+    }
+
+    //drops least recently used pages until the archive holds at most maxBytes.
+    //archive can fill up to its full size again afterwards
+    synchronized void trimToSize(long maxBytes) {
+        Iterator<Map.Entry<Integer, byte[]>> iterator = mArchivedPages.entrySet().iterator();
+        while (mArchivedBytes > maxBytes && iterator.hasNext()) {
+            mArchivedBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    private void disable() {
+        mIsDisabled = true;
+
+        synchronized (this) {
+            mArchivedPages.clear();
+            mArchivedBytes = 0;
+        }
+    }
+
+    private synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    private synchronized int getDataSetGeneration() {
+        return mDataSetGeneration;
+    }
+
+    @VisibleForTesting
+    synchronized byte[] getCompressedPage(int page) {
+        return mArchivedPages.get(page);
+    }
+
+    @VisibleForTesting
+    synchronized long getArchivedBytes() {
+        return mArchivedBytes;
+    }
+
+    @VisibleForTesting
+    synchronized void putCompressedPage(int page, byte[] compressedPage, int generation) {
+        //archive was cleared after this page was evicted
+        if (generation != mGeneration) return;
+
+        //page larger than whole archive cannot be kept
+        if (compressedPage.length > mMaxBytes) return;
+
+        byte[] previousPage = mArchivedPages.put(page, compressedPage);
+        if (previousPage != null) mArchivedBytes -= previousPage.length;
+
+        mArchivedBytes += compressedPage.length;
+
+        //drop least recently used pages until archive is within budget
+        trimToSize(mMaxBytes);
+    }
+
+    @VisibleForTesting
+    static byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            OutputStream outputStream = new DeflaterOutputStream(byteArrayOutputStream, deflater);
+            outputStream.write(bytes);
+            outputStream.close();
+
+        } finally {
+            //release native memory held by deflater
+            deflater.end();
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @VisibleForTesting
+    static byte[] decompress(byte[] bytes) throws IOException {
+        InputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        byte[] buffer = new byte[4096];
+        int readCount;
+
+        try {
+            while ((readCount = inputStream.read(buffer)) != -1) {
+                byteArrayOutputStream.write(buffer, 0, readCount);
+            }
+
+        } finally {
+            inputStream.close();
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    //default codec for pages whose items implement Serializable
+    static class SerializablePageCodec implements Stack.PageCodec {
+        @Override
+        public byte[] encode(List dataList) throws IOException {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+
+            try {
+                //copy lists that are not Serializable themselves, such as subList views
+                objectOutputStream.writeObject(dataList instanceof Serializable
+                        ? dataList : new ArrayList<Object>((List<?>) dataList));
+
+            } finally {
+                objectOutputStream.close();
+            }
+
+            return byteArrayOutputStream.toByteArray();
+        }
+
+        @Override
+        public List decode(byte[] bytes) throws IOException {
+            ObjectInputStream objectInputStream =
+                    new ObjectInputStream(new ByteArrayInputStream(bytes));
+
+            try {
+                Object dataList = objectInputStream.readObject();
+
+                if (!(dataList instanceof List)) {
+                    throw new IOException("Archived page is not a list");
+                }
+
+                return (List) dataList;
+
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+
+            } finally {
+                objectInputStream.close();
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@
 package com.atmko.stack;
 
 import android.util.SparseArray;
+import android.util.SparseLongArray;
 
 import java.util.List;
 
@@ -13,20 +14,45 @@ class PagingBlock {
     private final int mBlockIndex;
     private final int mBlockPageCapacity;
     private final SparseArray<List> mPageList;
+    private final SparseLongArray mPageSizeList;
+    //number of items block holds in adapter, including preload objects of pages not yet set
+    private int mAdapterItemCount;
+    private long mEstimatedSize;
 
     PagingBlock(int firstPage, int blockIndex, int blockPageCapacity) {
         this.mFirstPage = firstPage;
         this.mBlockIndex = blockIndex;
         this.mBlockPageCapacity = blockPageCapacity;
         this.mPageList = new SparseArray<>();
+        this.mPageSizeList = new SparseLongArray();
     }
 
     int getBlockPageCapacity() {
         return mBlockPageCapacity;
     }
 
-    void setDataListByPage(int page, List dataList) {
+    //estimatedSize replaces the estimated size of any data list previously set for the page
+    void setDataListByPage(int page, List dataList, long estimatedSize) {
         mPageList.put(page, dataList);
+
+        mEstimatedSize += estimatedSize - mPageSizeList.get(page);
+        mPageSizeList.put(page, estimatedSize);
+    }
+
+    long getEstimatedSize() {
+        return mEstimatedSize;
+    }
+
+    int getAdapterItemCount() {
+        return mAdapterItemCount;
+    }
+
+    void setAdapterItemCount(int adapterItemCount) {
+        this.mAdapterItemCount = adapterItemCount;
+    }
+
+    List getDataListByPage(int page) {
+        return mPageList.get(page);
     }
 
     int getFullDataCount() {
@@ -4,12 +4,15 @@
 
 package com.atmko.stack;
 
+import android.content.ComponentCallbacks2;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,6 +24,10 @@ public class Stack extends RecyclerView.OnScrollListener {
     public static final int GO_DOWN_ONE_BLOCK = 1;
     public static final int GO_UP_ONE_BLOCK = 2;
 
+    //change payload sent when preload objects are replaced by loaded data
+    //adapters can check for it in onBindViewHolder(holder, position, payloads) to do a partial bind
+    public static final Object PAYLOAD_PLACEHOLDER_RESOLVED = new Object();
+
     private final int mFirstPage;
     private int mTotalPages;
     private final int mBlockLimit;
@@ -32,6 +39,31 @@ public class Stack extends RecyclerView.OnScrollListener {
     private final SparseArray<PagingBlock> mPagingBlockMap;
     private boolean mIsIdle;
 
+    //memory budget eviction. a budget of 0 means blocks are evicted by mBlockLimit instead
+    private long mConfiguredMemoryBudget;
+    private long mMemoryBudget;
+    private ItemSizeEstimator mItemSizeEstimator;
+    //running total of resident blocks' estimated sizes
+    private long mEstimatedResidentSize;
+
+    //view holder pre-warming for incoming blocks
+    //RecyclerView's default number of recycled views kept per view type
+    private static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+    private boolean mPrewarmViewHolders;
+    private boolean mInflateViewHoldersInBackground;
+    //view holders created but not yet in the recycled view pool, by view type.
+    //only touched on the main thread
+    private final SparseIntArray mPrewarmingViewHolderCounts = new SparseIntArray();
+    //highest recycled view pool max stack has set, by view type
+    private final SparseIntArray mRaisedMaxRecycledViews = new SparseIntArray();
+
+    //compressed pages of evicted blocks. null when pages are always fetched with the loader
+    private PageArchive mPageArchive;
+
+    //last known visible adapter positions
+    private int mFirstShown;
+    private int mLastShown;
+
     private StackMethods mStackMethods;
 
     public Stack(boolean pageZeroStart, int blockLimit, PagingBlockTemplate pagingBlockTemplate,
@@ -59,14 +91,360 @@ public class Stack extends RecyclerView.OnScrollListener {
         List getAdapterData();
     }
 
+    public interface ItemSizeEstimator {
+        //approximate number of bytes an item keeps alive while it is in the stack
+        long estimateSize(Object item);
+    }
+
+    //evict blocks when the estimated size of resident items goes over budgetBytes
+    //instead of when the number of blocks reaches blockLimit
+    public void setMemoryBudget(long budgetBytes, ItemSizeEstimator itemSizeEstimator) {
+        this.mConfiguredMemoryBudget = budgetBytes;
+        this.mMemoryBudget = budgetBytes;
+        this.mItemSizeEstimator = itemSizeEstimator;
+
+        //estimate pages already in the stack once. later pages are estimated as they are set
+        mEstimatedResidentSize = 0;
+        for (int index = 0; index < mPagingBlockMap.size(); index++) {
+            PagingBlock pagingBlock = mPagingBlockMap.valueAt(index);
+
+            for (int page = pagingBlock.getFirstPageInBlock();
+                 page <= pagingBlock.getLastPageInBlock(); page++) {
+                List dataList = pagingBlock.getDataListByPage(page);
+
+                if (dataList != null) {
+                    pagingBlock.setDataListByPage(page, dataList, estimatePageSize(dataList));
+                }
+            }
+
+            mEstimatedResidentSize += pagingBlock.getEstimatedSize();
+        }
+
+        trimToMemoryBudget(null);
+    }
+
+    //forward from ComponentCallbacks2.onTrimMemory() to shrink the memory budget and the page
+    //archive under pressure
+    public void onTrimMemory(int level) {
+        int keptQuarters;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            keptQuarters = 1;
+
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            keptQuarters = 2;
+
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            keptQuarters = 3;
+
+        } else {
+            //ui hidden does not need items to be released
+            return;
+        }
+
+        if (mConfiguredMemoryBudget > 0) {
+            //budget only shrinks until setMemoryBudget is called again
+            mMemoryBudget = Math.min(mMemoryBudget, (mConfiguredMemoryBudget / 4) * keptQuarters);
+
+            trimToMemoryBudget(null);
+        }
+
+        if (mPageArchive != null) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+                //process is likely to be killed next. archived pages can be loaded again
+                mPageArchive.release();
+
+            } else {
+                mPageArchive.trimToSize((mPageArchive.getMaxBytes() / 4) * keptQuarters);
+            }
+        }
+    }
+
+    private boolean usesMemoryBudget() {
+        return mMemoryBudget > 0 && mItemSizeEstimator != null;
+    }
+
+    private boolean isAtBlockLimit() {
+        //memory budget trims blocks as data arrives, not before loading
+        return !usesMemoryBudget() && mPagingBlockMap.size() >= mBlockLimit;
+    }
+
+    //sets a page's data list and keeps the resident size estimate up to date
+    private void setPageDataList(PagingBlock pagingBlock, int pageNumber, List dataList) {
+        long previousBlockSize = pagingBlock.getEstimatedSize();
+
+        pagingBlock.setDataListByPage(pageNumber, dataList, estimatePageSize(dataList));
+
+        mEstimatedResidentSize += pagingBlock.getEstimatedSize() - previousBlockSize;
+    }
+
+    private long estimatePageSize(List dataList) {
+        if (mItemSizeEstimator == null) return 0;
+
+        long size = 0;
+        for (Object item : dataList) {
+            size += mItemSizeEstimator.estimateSize(item);
+        }
+
+        return size;
+    }
+
+    //stackedBlock is the block a page was just stacked into, or null
+    private void trimToMemoryBudget(PagingBlock stackedBlock) {
+        if (!usesMemoryBudget()) return;
+
+        //always keep at least one block
+        while (mPagingBlockMap.size() > 1 && mEstimatedResidentSize > mMemoryBudget) {
+            PagingBlock topBlock = mPagingBlockMap.valueAt(0);
+            PagingBlock bottomBlock = mPagingBlockMap.valueAt(mPagingBlockMap.size() - 1);
+
+            //number of items between each end block and the visible items.
+            //use adapter spans so preload objects of pages still loading are counted
+            int topDistance = mFirstShown - topBlock.getAdapterItemCount();
+            int bottomDistance = (mStackMethods.getAdapterData().size()
+                    - bottomBlock.getAdapterItemCount()) - (mLastShown + 1);
+
+            //blocks on screen or right next to it are about to be scrolled into, and the block
+            //just stacked was staged for the user. evicting either would only load it again
+            boolean canRemoveTop = topDistance > 0 && topBlock != stackedBlock;
+            boolean canRemoveBottom = bottomDistance > 0 && bottomBlock != stackedBlock;
+
+            //stay over budget until the user scrolls away from the remaining blocks
+            if (!canRemoveTop && !canRemoveBottom) return;
+
+            //evict block furthest from visible items
+            if (canRemoveTop && (!canRemoveBottom || topDistance >= bottomDistance)) {
+                removeTopBlock();
+
+            } else {
+                removeBottomBlock();
+            }
+        }
+    }
+
+    //create view holders for an incoming block ahead of time so scrolling into it does not inflate.
+    //if inflateInBackground is true, view holders are created off the main thread, so the
+    //adapter's onCreateViewHolder must be thread-safe. a view holder whose creation throws is
+    //created on the main thread instead. note: if more view holders of a type are needed than
+    //RecyclerView's default of 5, the recycled view pool's max for that type is raised to the
+    //needed count and is not restored afterwards. stack never lowers a max it has raised
+    public void setViewHolderPrewarming(boolean enabled, boolean inflateInBackground) {
+        this.mPrewarmViewHolders = enabled;
+        this.mInflateViewHoldersInBackground = inflateInBackground;
+    }
+
+    //sampleStart and sampleEnd (exclusive) are the adapter positions of the block next to the
+    //incoming block. its loaded items are the sample for the incoming block's view types
+    private void prewarmViewHolders(int sampleStart, int sampleEnd) {
+        if (!mPrewarmViewHolders) return;
+
+        List adapterData = mStackMethods.getAdapterData();
+
+        sampleStart = Math.max(0, sampleStart);
+        sampleEnd = Math.min(adapterData.size(), sampleEnd);
+
+        //count view types of loaded items to estimate the mix the incoming block will need
+        SparseIntArray viewTypeCounts = new SparseIntArray();
+        int loadedItemCount = 0;
+
+        for (int position = sampleStart; position < sampleEnd; position++) {
+            //preload objects do not tell us what the loaded item will look like
+            if (adapterData.get(position) == mPreloadObject) continue;
+
+            int viewType = mAdapter.getItemViewType(position);
+            viewTypeCounts.put(viewType, viewTypeCounts.get(viewType) + 1);
+            loadedItemCount += 1;
+        }
+
+        //nothing loaded yet to estimate from
+        if (loadedItemCount == 0) return;
+
+        //the first scroll into the block needs about one screen of items
+        int visibleItemCount = mLastShown - mFirstShown + 1;
+        if (visibleItemCount <= 0) visibleItemCount = mPagingBlockTemplate.pageCapacity;
+
+        visibleItemCount = Math.min(visibleItemCount,
+                mPagingBlockTemplate.pageCapacity * mPagingBlockTemplate.blockPageCapacity);
+
+        RecyclerView.RecycledViewPool recycledViewPool = mRecyclerView.getRecycledViewPool();
+
+        for (int index = 0; index < viewTypeCounts.size(); index++) {
+            int viewType = viewTypeCounts.keyAt(index);
+
+            //share of visible items with this view type, rounded up
+            int neededCount = (int) Math.ceil(
+                    (double) visibleItemCount * viewTypeCounts.valueAt(index) / loadedItemCount);
+            //view holders still being created from earlier staging count as available
+            int missingCount = neededCount
+                    - recycledViewPool.getRecycledViewCount(viewType)
+                    - mPrewarmingViewHolderCounts.get(viewType);
+
+            if (missingCount <= 0) continue;
+
+            //make room in pool so pre-warmed view holders are not discarded.
+            //pool already has room for the default, so a max set by the app is left alone
+            if (neededCount > DEFAULT_MAX_RECYCLED_VIEWS
+                    && neededCount > mRaisedMaxRecycledViews.get(viewType)) {
+                recycledViewPool.setMaxRecycledViews(viewType, neededCount);
+                mRaisedMaxRecycledViews.put(viewType, neededCount);
+            }
+
+            for (int i = 0; i < missingCount; i++) {
+                prewarmViewHolder(viewType);
+            }
+        }
+    }
+
+    private void prewarmViewHolder(final int viewType) {
+        mPrewarmingViewHolderCounts.put(viewType, mPrewarmingViewHolderCounts.get(viewType) + 1);
+
+        if (mInflateViewHoldersInBackground) {
+            AppExecutors.getInstance().viewInflation().execute(new Runnable() {
+                @Override
+                public void run() {
+                    RecyclerView.ViewHolder viewHolder;
+
+                    //some views can only be created on the main thread.
+                    //fall back to creating those on the main thread
+                    try {
+                        viewHolder = mAdapter.createViewHolder(mRecyclerView, viewType);
+
+                    } catch (RuntimeException e) {
+                        viewHolder = null;
+                    }
+
+                    final RecyclerView.ViewHolder inflatedViewHolder = viewHolder;
+
+                    AppExecutors.getInstance().mainThread().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (inflatedViewHolder != null) {
+                                putPrewarmedViewHolder(inflatedViewHolder, viewType);
+
+                            } else {
+                                putPrewarmedViewHolder(
+                                        mAdapter.createViewHolder(mRecyclerView, viewType),
+                                        viewType);
+                            }
+                        }
+                    });
+                }
+            });
+
+        } else {
+            //post so inflation happens after the current frame rather than during block staging
+            AppExecutors.getInstance().mainThread().execute(new Runnable() {
+                @Override
+                public void run() {
+                    putPrewarmedViewHolder(
+                            mAdapter.createViewHolder(mRecyclerView, viewType), viewType);
+                }
+            });
+        }
+    }
+
+    private void putPrewarmedViewHolder(RecyclerView.ViewHolder viewHolder, int viewType) {
+        mPrewarmingViewHolderCounts.put(viewType, mPrewarmingViewHolderCounts.get(viewType) - 1);
+
+        mRecyclerView.getRecycledViewPool().putRecycledView(viewHolder);
+    }
+
+    public interface PageCodec {
+        byte[] encode(List dataList) throws IOException;
+        List decode(byte[] bytes) throws IOException;
+    }
+
+    //keep pages of evicted blocks compressed in memory, up to maxArchiveBytes, and recall them
+    //instead of calling the page loader when their block is added again.
+    //items must implement Serializable. if the first evicted page cannot be serialized, the
+    //archive turns itself off and pages are fetched with the loader as before.
+    //pages being recalled from a replaced archive are fetched with the loader instead
+    public void setPageArchive(long maxArchiveBytes) {
+        setPageArchive(maxArchiveBytes, new PageArchive.SerializablePageCodec());
+    }
+
+    public void setPageArchive(long maxArchiveBytes, PageCodec pageCodec) {
+        if (mPageArchive != null) mPageArchive.release();
+
+        this.mPageArchive = maxArchiveBytes > 0 ? new PageArchive(maxArchiveBytes, pageCodec) : null;
+    }
+
+    private void archiveBlock(PagingBlock pagingBlock) {
+        if (mPageArchive == null) return;
+
+        for (int page = pagingBlock.getFirstPageInBlock();
+             page <= pagingBlock.getLastPageInBlock(); page++) {
+            List dataList = pagingBlock.getDataListByPage(page);
+
+            //skip pages not yet loaded and pages already archived
+            if (dataList == null || dataList.isEmpty()
+                    || dataList.contains(mPreloadObject) || mPageArchive.hasPage(page)) {
+                continue;
+            }
+
+            mPageArchive.archivePage(page, dataList);
+        }
+    }
+
+    private void requestPage(final int blockNumber, final int targetPage, final int stackOperation) {
+        if (mPageArchive != null && mPageArchive.hasPage(targetPage)) {
+            mPageArchive.recallPage(targetPage, new PageArchive.OnPageRecalledListener() {
+                @Override
+                public void onPageRecalled(List dataList) {
+                    if (dataList != null) {
+                        stackPage(blockNumber, targetPage, dataList, stackOperation);
+
+                    } else {
+                        //page could not be recalled. fetch it instead
+                        requestPageFromLoader(blockNumber, targetPage, stackOperation);
+                    }
+                }
+            });
+
+        } else {
+            requestPageFromLoader(blockNumber, targetPage, stackOperation);
+        }
+    }
+
+    private void requestPageFromLoader(int blockNumber, int targetPage, int stackOperation) {
+        if (stackOperation == GO_UP_ONE_BLOCK) {
+            mPagingBlockTemplate.createPageLoader.onPageStartReached(blockNumber, targetPage);
+
+        } else {
+            mPagingBlockTemplate.createPageLoader.onPageEndReached(blockNumber, targetPage);
+        }
+    }
+
     private boolean isAdapterEmpty() {
         return mStackMethods.getAdapterData().size() == 0;
     }
 
+    boolean isBlockResident(int blockNumber) {
+        return mPagingBlockMap.get(blockNumber) != null;
+    }
+
     private SparseArray<PagingBlock> getPagingBlockMap() {
         return mPagingBlockMap;
     }
 
+    //returns an id that stays the same for an item no matter how many blocks are added or removed
+    //above it. ids are based on the item's position in the full list rather than in the adapter,
+    //so a preload object and the data that replaces it share the same id and the bound view can be
+    //reused. adapters that call setHasStableIds(true) should return this from getItemId()
+    public long getItemId(int position) {
+        if (mPagingBlockMap.size() == 0) return position;
+
+        int firstBlockNumber = mPagingBlockMap.keyAt(0);
+
+        //every block above the first resident block is full, so its items can be counted
+        //without the block being in the stack
+        long itemsAbove = (long) firstBlockNumber
+                * mPagingBlockTemplate.pageCapacity
+                * mPagingBlockTemplate.blockPageCapacity;
+
+        return itemsAbove + position;
+    }
+
     public boolean isIdle() {
         return mIsIdle;
     }
@@ -100,6 +478,7 @@ public class Stack extends RecyclerView.OnScrollListener {
                             mPagingBlockTemplate.getBlockPageCapacity());
 
             restorePagingBlockPages(pagingBlock, fullDataList);
+            pagingBlock.setAdapterItemCount(pagingBlock.getFullDataCount());
 
             mPagingBlockMap.put(blockIndex, pagingBlock);
         }
@@ -123,7 +502,7 @@ public class Stack extends RecyclerView.OnScrollListener {
 
             }
 
-            pagingBlock.setDataListByPage(pageNumber, dataList);
+            setPageDataList(pagingBlock, pageNumber, dataList);
         }
 
     }
@@ -144,10 +523,14 @@ public class Stack extends RecyclerView.OnScrollListener {
         //clear values
         mPagingBlockMap.clear();
         mStackMethods.getAdapterData().clear();
+        mEstimatedResidentSize = 0;
 
         mAdapter.notifyDataSetChanged();
         mTotalPages = 0;
 
+        //archived pages belong to the previous data set
+        if (mPageArchive != null) mPageArchive.clear();
+
         //load new block
         loadNextBlock(0);
     }
@@ -181,7 +564,7 @@ public class Stack extends RecyclerView.OnScrollListener {
         //one before its results could be stacked
         if (pagingBlock != null) {
             //set data lists
-            pagingBlock.setDataListByPage(pageNumber, dataList);
+            setPageDataList(pagingBlock, pageNumber, dataList);
 
         } else {
             return;
@@ -196,6 +579,8 @@ public class Stack extends RecyclerView.OnScrollListener {
             addItemsIntoAdapter(pagingBlock, pageNumber, dataList);
         }
 
+        trimToMemoryBudget(pagingBlock);
+
         mIsIdle = true;
     }
 
@@ -228,16 +613,20 @@ public class Stack extends RecyclerView.OnScrollListener {
             }
         }
 
-        mAdapter.notifyItemRangeChanged(firstInsertPosition, dataList.size());
+        //payload lets the item animator reuse the same view holder instead of cross fading
+        mAdapter.notifyItemRangeChanged(firstInsertPosition, dataList.size(),
+                PAYLOAD_PLACEHOLDER_RESOLVED);
 
         //TODO add method that remove extra data BEFORE items are stacked to avoid late clean up
         //if incoming data < page capacity, remove extraneous empty data
         if (dataList.size() < mPagingBlockTemplate.pageCapacity) {
             int correctionDifference = mPagingBlockTemplate.pageCapacity - dataList.size();
+            int removedCount = 0;
 
             for (int i = 0; i < correctionDifference; i++) {
                 try {
                     mStackMethods.getAdapterData().remove(mStackMethods.getAdapterData().size() - 1);
+                    removedCount += 1;
 
                 } catch (IndexOutOfBoundsException e) {
                     e.printStackTrace();
@@ -245,7 +634,12 @@ public class Stack extends RecyclerView.OnScrollListener {
 
             }
 
-            mAdapter.notifyItemRangeRemoved(correctionDifference - 1, correctionDifference);
+            //block now holds fewer items in adapter
+            pagingBlock.setAdapterItemCount(pagingBlock.getAdapterItemCount() - removedCount);
+
+            //extra items were removed from the end of the adapter.
+            //notify the range that was actually removed so stable ids line up with their positions
+            mAdapter.notifyItemRangeRemoved(mStackMethods.getAdapterData().size(), removedCount);
         }
 
         //TODO data still in paging data now useless now that its been added to adapter.
@@ -256,16 +650,28 @@ public class Stack extends RecyclerView.OnScrollListener {
         mIsIdle = false;
 
         int firstKey = mPagingBlockMap.keyAt(0);
-        int listSize = mPagingBlockMap.get(firstKey).getFullDataCount();
+        PagingBlock pagingBlock = mPagingBlockMap.get(firstKey);
+
+        //remove preload objects of pages still loading along with loaded items
+        int listSize = Math.min(pagingBlock.getAdapterItemCount(),
+                mStackMethods.getAdapterData().size());
+
+        archiveBlock(pagingBlock);
+        mEstimatedResidentSize -= pagingBlock.getEstimatedSize();
 
         //loop through length of block
         for (int index = 0; index < listSize; index++) {
             //remove top item in adapter
             mStackMethods.getAdapterData().remove(0);
-            //notify change
-            mAdapter.notifyItemRemoved(0);
         }
 
+        //notify change once so remaining items keep their view holders
+        mAdapter.notifyItemRangeRemoved(0, listSize);
+
+        //visible items moved up with the rest of the list
+        mFirstShown -= listSize;
+        mLastShown -= listSize;
+
         mPagingBlockMap.remove(firstKey);
 
         //stack is idle
@@ -277,16 +683,24 @@ public class Stack extends RecyclerView.OnScrollListener {
         mIsIdle = false;
 
         int lastKey = mPagingBlockMap.keyAt(mPagingBlockMap.size() - 1);
-        int listSize = mPagingBlockMap.get(lastKey).getFullDataCount();
+        PagingBlock pagingBlock = mPagingBlockMap.get(lastKey);
+
+        //remove preload objects of pages still loading along with loaded items
+        int listSize = Math.min(pagingBlock.getAdapterItemCount(),
+                mStackMethods.getAdapterData().size());
+
+        archiveBlock(pagingBlock);
+        mEstimatedResidentSize -= pagingBlock.getEstimatedSize();
 
         //loop through length of block
         for (int index = 0; index < listSize; index++) {
             //remove bottom item in adapter
             mStackMethods.getAdapterData().remove(mStackMethods.getAdapterData().size() - 1);
-            //notify change
-            mAdapter.notifyItemRemoved(mStackMethods.getAdapterData().size() - 1);
         }
 
+        //notify change once so remaining items keep their view holders
+        mAdapter.notifyItemRangeRemoved(mStackMethods.getAdapterData().size(), listSize);
+
         mPagingBlockMap.remove(lastKey);
 
         //stack is idle
@@ -319,10 +733,21 @@ public class Stack extends RecyclerView.OnScrollListener {
             preStackPageBackWards();
         }
 
+        int blockItemCount =
+                mPagingBlockTemplate.pageCapacity * mPagingBlockTemplate.blockPageCapacity;
+        pagingBlock.setAdapterItemCount(blockItemCount);
+
+        //visible items moved down below the new top block
+        mFirstShown += blockItemCount;
+        mLastShown += blockItemCount;
+
+        //sample block below the new top block
+        prewarmViewHolders(blockItemCount, blockItemCount * 2);
+
         //iterate through block page capacity
         for (int i = 0; i < mPagingBlockTemplate.getBlockPageCapacity(); i++) {
-            //fetch page data
-            mPagingBlockTemplate.createPageLoader.onPageStartReached(blockNumber, targetPage);
+            //fetch page data from archive or loader
+            requestPage(blockNumber, targetPage, GO_UP_ONE_BLOCK);
 
             //increase targetPage value
             targetPage += 1;
@@ -365,11 +790,19 @@ public class Stack extends RecyclerView.OnScrollListener {
             preStackPageForwards();
         }
 
+        int blockItemCount =
+                mPagingBlockTemplate.pageCapacity * mPagingBlockTemplate.blockPageCapacity;
+        pagingBlock.setAdapterItemCount(blockItemCount);
+
+        //sample block above the new bottom block
+        int newBlockStart = mStackMethods.getAdapterData().size() - blockItemCount;
+        prewarmViewHolders(newBlockStart - blockItemCount, newBlockStart);
+
         //TODO if number of pages ahead is < getBlockPageCapacity then extra api queries are a wasted
         //iterate through block page capacity
         for (int i = 0; i < mPagingBlockTemplate.getBlockPageCapacity(); i++) {
-            //fetch page data
-            mPagingBlockTemplate.createPageLoader.onPageEndReached(blockNumber, targetPage);
+            //fetch page data from archive or loader
+            requestPage(blockNumber, targetPage, GO_DOWN_ONE_BLOCK);
 
             //increase targetPage value
             targetPage += 1;
@@ -451,6 +884,14 @@ public class Stack extends RecyclerView.OnScrollListener {
         int firstShownIndex = ((GridLayoutManager)recyclerView.getLayoutManager())
                 .findFirstVisibleItemPosition();
 
+        onVisibleRangeChanged(firstShownIndex, lastShown);
+    }
+
+    //separate from onScrolled so visible positions can be supplied without a layout manager
+    void onVisibleRangeChanged(int firstShownIndex, int lastShown) {
+        mFirstShown = firstShownIndex;
+        mLastShown = lastShown;
+
         //isLastItem makes sure we are at the end of list
         boolean isLastItem = lastShown == mAdapter.getItemCount() - 1;
         //isFirstItem makes sure we are at the start of list
@@ -495,7 +936,7 @@ public class Stack extends RecyclerView.OnScrollListener {
                             AppExecutors.getInstance().mainThread().execute(new Runnable() {
                                 @Override
                                 public void run() {
-                                    if (mPagingBlockMap.size() == mBlockLimit) {
+                                    if (isAtBlockLimit()) {
                                         removeTopBlock();
                                     }
 
@@ -507,7 +948,7 @@ public class Stack extends RecyclerView.OnScrollListener {
                 });
 
             } else {
-                if (mPagingBlockMap.size() == mBlockLimit) {
+                if (isAtBlockLimit()) {
                     removeTopBlock();
                 }
 
@@ -523,7 +964,7 @@ public class Stack extends RecyclerView.OnScrollListener {
                             AppExecutors.getInstance().mainThread().execute(new Runnable() {
                                 @Override
                                 public void run() {
-                                    if (mPagingBlockMap.size() == mBlockLimit) {
+                                    if (isAtBlockLimit()) {
                                         removeBottomBlock();
                                     }
 
@@ -535,7 +976,7 @@ public class Stack extends RecyclerView.OnScrollListener {
                 });
 
             } else {
-                if (mPagingBlockMap.size() == mBlockLimit) {
+                if (isAtBlockLimit()) {
                     removeBottomBlock();
                 }
 
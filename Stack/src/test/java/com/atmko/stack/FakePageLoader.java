@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 Aayat Mimiko
+ */
+
+package com.atmko.stack;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+//page loader that answers requests after a simulated delay instead of over the network
+class FakePageLoader implements Stack.PagingBlockTemplate.OnCreatePageLoader {
+    private final int mFirstPage;
+    private final int mPageCapacity;
+    private final int mTotalPages;
+    private final Random mRandom;
+    private final PriorityQueue<PendingPage> mPendingPages;
+    private final Set<Integer> mRequestedPages;
+    //number of items on the last page of the feed
+    private int mLastPageItemCount;
+
+    private LatencyModel mLatencyModel;
+    private double mFailureRate;
+    private long mCurrentTime;
+    private long mRequestCount;
+    private int mRequestsIssued;
+    private int mRepeatedRequests;
+
+    interface LatencyModel {
+        long sampleMillis(Random random);
+    }
+
+    static LatencyModel fixedLatency(final long millis) {
+        return new LatencyModel() {
+            @Override
+            public long sampleMillis(Random random) {
+                return millis;
+            }
+        };
+    }
+
+    static LatencyModel uniformLatency(final long minMillis, final long maxMillis) {
+        return new LatencyModel() {
+            @Override
+            public long sampleMillis(Random random) {
+                return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+            }
+        };
+    }
+
+    //mostly typicalMillis, but slowChance of requests take slowMillis
+    static LatencyModel longTailLatency(final long typicalMillis, final double slowChance,
+                                        final long slowMillis) {
+        return new LatencyModel() {
+            @Override
+            public long sampleMillis(Random random) {
+                return random.nextDouble() < slowChance ? slowMillis : typicalMillis;
+            }
+        };
+    }
+
+    FakePageLoader(int firstPage, int pageCapacity, int totalPages, Random random) {
+        this.mFirstPage = firstPage;
+        this.mPageCapacity = pageCapacity;
+        this.mTotalPages = totalPages;
+        this.mRandom = random;
+        this.mPendingPages = new PriorityQueue<>();
+        this.mRequestedPages = new HashSet<>();
+        this.mLatencyModel = fixedLatency(0);
+        this.mLastPageItemCount = pageCapacity;
+    }
+
+    void setLatencyModel(LatencyModel latencyModel) {
+        this.mLatencyModel = latencyModel;
+    }
+
+    void setFailureRate(double failureRate) {
+        this.mFailureRate = failureRate;
+    }
+
+    //feeds whose item count is not a multiple of page capacity end on a short page
+    void setLastPageItemCount(int lastPageItemCount) {
+        this.mLastPageItemCount = lastPageItemCount;
+    }
+
+    int getRequestsIssued() {
+        return mRequestsIssued;
+    }
+
+    //requests for pages that had been requested before
+    int getRepeatedRequests() {
+        return mRepeatedRequests;
+    }
+
+    boolean hasPendingPages() {
+        return !mPendingPages.isEmpty();
+    }
+
+    //returns pages whose simulated delay has passed, in the order they arrive
+    List<PendingPage> collectDuePages(long currentTime) {
+        mCurrentTime = currentTime;
+
+        List<PendingPage> duePages = new ArrayList<>();
+        while (!mPendingPages.isEmpty() && mPendingPages.peek().deliverAt <= currentTime) {
+            duePages.add(mPendingPages.poll());
+        }
+
+        return duePages;
+    }
+
+    @Override
+    public void onPageEndReached(int blockNumber, int targetPage) {
+        request(blockNumber, targetPage, Stack.GO_DOWN_ONE_BLOCK);
+    }
+
+    @Override
+    public void onPageStartReached(int blockNumber, int targetPage) {
+        request(blockNumber, targetPage, Stack.GO_UP_ONE_BLOCK);
+    }
+
+    private void request(int blockNumber, int targetPage, int stackOperation) {
+        mRequestsIssued += 1;
+        if (!mRequestedPages.add(targetPage)) mRepeatedRequests += 1;
+
+        //a failed request comes back with no data
+        List dataList = mRandom.nextDouble() < mFailureRate ? null : createPage(targetPage);
+        long deliverAt = mCurrentTime + mLatencyModel.sampleMillis(mRandom);
+
+        mPendingPages.add(new PendingPage(blockNumber, targetPage, stackOperation, dataList,
+                deliverAt, mRequestCount++));
+    }
+
+    private List createPage(int page) {
+        List dataList = new ArrayList();
+
+        //pages past the end of the feed come back empty
+        if (page < mFirstPage || page >= mFirstPage + mTotalPages) return dataList;
+
+        //each item is its position in the full list so misplaced items can be found
+        int firstItem = (page - mFirstPage) * mPageCapacity;
+        int itemCount = page == mFirstPage + mTotalPages - 1 ? mLastPageItemCount : mPageCapacity;
+        for (int i = 0; i < itemCount; i++) {
+            dataList.add(firstItem + i);
+        }
+
+        return dataList;
+    }
+
+    static class PendingPage implements Comparable<PendingPage> {
+        final int blockNumber;
+        final int pageNumber;
+        final int stackOperation;
+        final List dataList;
+        final long deliverAt;
+        //breaks ties between pages due at the same time so delivery order is deterministic
+        private final long sequence;
+
+        PendingPage(int blockNumber, int pageNumber, int stackOperation, List dataList,
+                    long deliverAt, long sequence) {
+            this.blockNumber = blockNumber;
+            this.pageNumber = pageNumber;
+            this.stackOperation = stackOperation;
+            this.dataList = dataList;
+            this.deliverAt = deliverAt;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PendingPage other) {
+            if (deliverAt != other.deliverAt) return deliverAt < other.deliverAt ? -1 : 1;
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
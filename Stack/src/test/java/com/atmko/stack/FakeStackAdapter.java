@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 Aayat Mimiko
+ */
+
+package com.atmko.stack;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//adapter that counts the notifications stack sends instead of binding views
+class FakeStackAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+        implements Stack.StackMethods {
+    private final List mAdapterData;
+    //stack the adapter takes its stable ids from. replaced when the stack is recreated
+    private Stack mStack;
+
+    int insertNotifications;
+    int insertedItems;
+    int removeNotifications;
+    int removedItems;
+    int changeNotifications;
+    int changedItems;
+    //change notifications sent without Stack.PAYLOAD_PLACEHOLDER_RESOLVED
+    int changesWithoutPayload;
+    int dataSetChangedNotifications;
+    //notifications for positions the adapter did not have at the time
+    int outOfRangeNotifications;
+    //item count the adapter would have if only notified changes were applied
+    int notifiedItemCount;
+
+    FakeStackAdapter() {
+        this.mAdapterData = new ArrayList();
+
+        //must be set before an observer is registered
+        setHasStableIds(true);
+
+        registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                dataSetChangedNotifications += 1;
+                notifiedItemCount = mAdapterData.size();
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                changeNotifications += 1;
+                changedItems += itemCount;
+                if (payload != Stack.PAYLOAD_PLACEHOLDER_RESOLVED) changesWithoutPayload += 1;
+                checkRange(positionStart, itemCount, notifiedItemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                insertNotifications += 1;
+                insertedItems += itemCount;
+                checkRange(positionStart, 0, notifiedItemCount);
+                notifiedItemCount += itemCount;
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                removeNotifications += 1;
+                removedItems += itemCount;
+                checkRange(positionStart, itemCount, notifiedItemCount);
+                notifiedItemCount -= itemCount;
+            }
+        });
+    }
+
+    private void checkRange(int positionStart, int itemCount, int size) {
+        if (positionStart < 0 || itemCount < 0 || positionStart + itemCount > size) {
+            outOfRangeNotifications += 1;
+        }
+    }
+
+    void setStack(Stack stack) {
+        this.mStack = stack;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mStack.getItemId(position);
+    }
+
+    @Override
+    public List getAdapterData() {
+        return mAdapterData;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new RecyclerView.ViewHolder(new View(parent.getContext())) {};
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+    }
+
+    @Override
+    public int getItemCount() {
+        return mAdapterData.size();
+    }
+}
@@ -0,0 +1,154 @@
+package com.atmko.stack;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PageArchiveTest {
+    private static final int GENERATION = 0;
+
+    private PageArchive createPageArchive(long maxBytes) {
+        return new PageArchive(maxBytes, new PageArchive.SerializablePageCodec());
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+        objectOutputStream.writeObject(object);
+        objectOutputStream.close();
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Test
+    public void compress_thenDecompress_returnsOriginalBytes() throws IOException {
+        byte[] bytes = new byte[10000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i % 16);
+        }
+
+        byte[] compressedBytes = PageArchive.compress(bytes);
+
+        assertTrue(compressedBytes.length < bytes.length);
+        assertArrayEquals(bytes, PageArchive.decompress(compressedBytes));
+        assertArrayEquals(new byte[0], PageArchive.decompress(PageArchive.compress(new byte[0])));
+    }
+
+    @Test
+    public void serializablePageCodec_roundTripsPage() throws IOException {
+        PageArchive.SerializablePageCodec pageCodec = new PageArchive.SerializablePageCodec();
+        List dataList = new ArrayList(Arrays.asList("first", 2, 3L));
+
+        List decodedDataList = pageCodec.decode(
+                PageArchive.decompress(PageArchive.compress(pageCodec.encode(dataList))));
+
+        assertEquals(dataList, decodedDataList);
+    }
+
+    @Test
+    public void serializablePageCodec_withNonSerializableList_copiesItems() throws IOException {
+        PageArchive.SerializablePageCodec pageCodec = new PageArchive.SerializablePageCodec();
+        //subList views are not Serializable themselves
+        List dataList = new ArrayList(Arrays.asList(1, 2, 3, 4)).subList(1, 3);
+
+        assertEquals(dataList, pageCodec.decode(pageCodec.encode(dataList)));
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void serializablePageCodec_withNonSerializableItems_throws() throws IOException {
+        new PageArchive.SerializablePageCodec().encode(Arrays.asList(new Object()));
+    }
+
+    @Test(expected = IOException.class)
+    public void serializablePageCodec_withNonListBytes_throwsIOException() throws IOException {
+        new PageArchive.SerializablePageCodec().decode(serialize("page"));
+    }
+
+    @Test
+    public void putCompressedPage_overBudget_dropsLeastRecentlyUsedPage() {
+        PageArchive pageArchive = createPageArchive(10);
+
+        pageArchive.putCompressedPage(1, new byte[4], GENERATION);
+        pageArchive.putCompressedPage(2, new byte[4], GENERATION);
+        //recalling page 1 makes page 2 least recently used
+        pageArchive.getCompressedPage(1);
+        pageArchive.putCompressedPage(3, new byte[4], GENERATION);
+
+        assertTrue(pageArchive.hasPage(1));
+        assertFalse(pageArchive.hasPage(2));
+        assertTrue(pageArchive.hasPage(3));
+        assertEquals(8, pageArchive.getArchivedBytes());
+    }
+
+    @Test
+    public void putCompressedPage_replacingPage_countsOnlyNewBytes() {
+        PageArchive pageArchive = createPageArchive(10);
+
+        pageArchive.putCompressedPage(1, new byte[4], GENERATION);
+        pageArchive.putCompressedPage(1, new byte[6], GENERATION);
+
+        assertEquals(6, pageArchive.getArchivedBytes());
+        assertEquals(6, pageArchive.getCompressedPage(1).length);
+    }
+
+    @Test
+    public void putCompressedPage_largerThanArchive_isNotKept() {
+        PageArchive pageArchive = createPageArchive(10);
+
+        pageArchive.putCompressedPage(1, new byte[4], GENERATION);
+        pageArchive.putCompressedPage(2, new byte[11], GENERATION);
+
+        assertTrue(pageArchive.hasPage(1));
+        assertFalse(pageArchive.hasPage(2));
+        assertEquals(4, pageArchive.getArchivedBytes());
+    }
+
+    @Test
+    public void putCompressedPage_afterClear_dropsPageFromOlderGeneration() {
+        PageArchive pageArchive = createPageArchive(10);
+
+        pageArchive.putCompressedPage(1, new byte[4], GENERATION);
+        pageArchive.clear();
+        pageArchive.putCompressedPage(2, new byte[4], GENERATION);
+
+        assertFalse(pageArchive.hasPage(1));
+        assertFalse(pageArchive.hasPage(2));
+        assertEquals(0, pageArchive.getArchivedBytes());
+    }
+
+    @Test
+    public void trimToSize_dropsLeastRecentlyUsedPagesOnly() {
+        PageArchive pageArchive = createPageArchive(12);
+
+        pageArchive.putCompressedPage(1, new byte[4], GENERATION);
+        pageArchive.putCompressedPage(2, new byte[4], GENERATION);
+        pageArchive.putCompressedPage(3, new byte[4], GENERATION);
+        pageArchive.trimToSize(8);
+
+        assertFalse(pageArchive.hasPage(1));
+        assertTrue(pageArchive.hasPage(2));
+        assertTrue(pageArchive.hasPage(3));
+        assertEquals(8, pageArchive.getArchivedBytes());
+    }
+
+    @Test
+    public void putCompressedPage_afterRelease_dropsPageEncodedBeforeRelease() {
+        PageArchive pageArchive = createPageArchive(10);
+
+        pageArchive.putCompressedPage(1, new byte[4], GENERATION);
+        pageArchive.release();
+        pageArchive.putCompressedPage(2, new byte[4], GENERATION);
+
+        assertFalse(pageArchive.hasPage(1));
+        assertFalse(pageArchive.hasPage(2));
+        assertEquals(0, pageArchive.getArchivedBytes());
+    }
+}
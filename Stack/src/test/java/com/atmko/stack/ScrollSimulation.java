@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2019 Aayat Mimiko
+ */
+
+package com.atmko.stack;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+//plays a ScrollTrace against a stack with a fake adapter and a fake page loader on a simulated
+//clock. runs are repeatable for the same seed. needs a robolectric test runner for RecyclerView
+class ScrollSimulation {
+    private static final long FRAME_MILLIS = 16;
+    //frames to wait at the edge of loaded items before giving up on a scroll
+    private static final int MAX_STALLED_FRAMES = 600;
+    private static final boolean PAGE_ZERO_START = false;
+
+    private final int mPageCapacity;
+    private final int mBlockPageCapacity;
+    private final int mBlockLimit;
+    private final int mTotalPages;
+    private final int mVisibleItemCount;
+    private final int mItemsPerFrame;
+    private final long mSeed;
+    private final Object mPreloadObject;
+
+    private FakePageLoader.LatencyModel mLatencyModel;
+    private double mFailureRate;
+    private int mLastPageItemCount;
+    private long mMemoryBudget;
+    private Stack.ItemSizeEstimator mItemSizeEstimator;
+    private long mMaxArchiveBytes;
+    private Stack.PageCodec mPageCodec;
+
+    private RecyclerView mRecyclerView;
+    private FakeStackAdapter mAdapter;
+    private FakePageLoader mPageLoader;
+    private Stack mStack;
+    private SimulationReport mReport;
+    private long mCurrentTime;
+    //position of first visible item in the full list
+    private int mFirstVisible;
+
+    ScrollSimulation(int pageCapacity, int blockPageCapacity, int blockLimit, int totalPages,
+                     int visibleItemCount, int itemsPerFrame, long seed) {
+        this.mPageCapacity = pageCapacity;
+        this.mBlockPageCapacity = blockPageCapacity;
+        this.mBlockLimit = blockLimit;
+        this.mTotalPages = totalPages;
+        this.mVisibleItemCount = visibleItemCount;
+        this.mItemsPerFrame = itemsPerFrame;
+        this.mSeed = seed;
+        this.mPreloadObject = new Object();
+        this.mLatencyModel = FakePageLoader.fixedLatency(0);
+        this.mLastPageItemCount = pageCapacity;
+    }
+
+    void setLatencyModel(FakePageLoader.LatencyModel latencyModel) {
+        this.mLatencyModel = latencyModel;
+    }
+
+    void setFailureRate(double failureRate) {
+        this.mFailureRate = failureRate;
+    }
+
+    void setLastPageItemCount(int lastPageItemCount) {
+        this.mLastPageItemCount = lastPageItemCount;
+    }
+
+    //evict by memory budget instead of block limit
+    void setMemoryBudget(long memoryBudget, Stack.ItemSizeEstimator itemSizeEstimator) {
+        this.mMemoryBudget = memoryBudget;
+        this.mItemSizeEstimator = itemSizeEstimator;
+    }
+
+    //recall pages of evicted blocks from a page archive instead of the loader
+    void setPageArchive(long maxArchiveBytes, Stack.PageCodec pageCodec) {
+        this.mMaxArchiveBytes = maxArchiveBytes;
+        this.mPageCodec = pageCodec;
+    }
+
+    SimulationReport run(ScrollTrace scrollTrace) {
+        mReport = new SimulationReport();
+        mCurrentTime = 0;
+        mFirstVisible = 0;
+
+        mRecyclerView = new RecyclerView(ApplicationProvider.getApplicationContext());
+        mAdapter = new FakeStackAdapter();
+        mPageLoader = new FakePageLoader(PAGE_ZERO_START ? 0 : 1, mPageCapacity, mTotalPages,
+                new Random(mSeed));
+        mPageLoader.setLatencyModel(mLatencyModel);
+        mPageLoader.setFailureRate(mFailureRate);
+        mPageLoader.setLastPageItemCount(mLastPageItemCount);
+
+        mStack = createStack();
+        mAdapter.setStack(mStack);
+        mStack.initialize();
+        mStack.setTotalPages(mTotalPages);
+
+        for (ScrollTrace.Event event : scrollTrace.getEvents()) {
+            if (event.type == ScrollTrace.Event.ROTATION) {
+                rotate();
+
+            } else if (event.type == ScrollTrace.Event.TRIM_MEMORY) {
+                trimMemory(event.trimMemoryLevel);
+
+            } else {
+                scrollTo(event.targetPosition);
+            }
+        }
+
+        //let requests and archive recalls still in flight arrive
+        int drainFrames = 0;
+        do {
+            advanceFrame();
+            drainFrames += 1;
+        } while (mPageLoader.hasPendingPages() && drainFrames < MAX_STALLED_FRAMES);
+
+        finishReport();
+
+        return mReport;
+    }
+
+    private Stack createStack() {
+        Stack.PagingBlockTemplate pagingBlockTemplate =
+                new Stack.PagingBlockTemplate(mPageLoader, mPageCapacity, mBlockPageCapacity);
+
+        Stack stack = new Stack(PAGE_ZERO_START, mBlockLimit, pagingBlockTemplate, mPreloadObject,
+                mRecyclerView, mAdapter, false);
+
+        if (mItemSizeEstimator != null) stack.setMemoryBudget(mMemoryBudget, mItemSizeEstimator);
+        if (mPageCodec != null) stack.setPageArchive(mMaxArchiveBytes, mPageCodec);
+
+        return stack;
+    }
+
+    //stack is recreated while adapter data and requests in flight are kept
+    private void rotate() {
+        int[] blockStructure = mStack.saveBlockStructure();
+        List savedData = new ArrayList(mAdapter.getAdapterData());
+
+        mStack = createStack();
+        mAdapter.setStack(mStack);
+        mStack.setTotalPages(mTotalPages);
+        mStack.restorePagingBlockStructure(blockStructure, savedData);
+
+        mReport.rotations += 1;
+
+        settle();
+    }
+
+    private void trimMemory(int level) {
+        mStack.onTrimMemory(level);
+
+        mReport.trimMemoryEvents += 1;
+
+        settle();
+    }
+
+    private void scrollTo(int targetPosition) {
+        int stalledFrames = 0;
+
+        while (mFirstVisible != targetPosition && stalledFrames < MAX_STALLED_FRAMES) {
+            advanceFrame();
+
+            int itemsAbove = getItemsAbove();
+            int lowestPosition = itemsAbove;
+            int highestPosition = itemsAbove + Math.max(0, getItemCount() - mVisibleItemCount);
+
+            int step = Math.max(-mItemsPerFrame,
+                    Math.min(mItemsPerFrame, targetPosition - mFirstVisible));
+            int nextPosition =
+                    Math.max(lowestPosition, Math.min(highestPosition, mFirstVisible + step));
+
+            if (nextPosition == mFirstVisible) {
+                //reached the edge of loaded items. stop so stack can load the next block
+                settle();
+                stalledFrames += 1;
+
+            } else {
+                mFirstVisible = nextPosition;
+                reportVisibleRange();
+                stalledFrames = 0;
+            }
+
+            measureVisibleItems();
+        }
+
+        if (mFirstVisible != targetPosition) mReport.stalledScrolls += 1;
+
+        settle();
+    }
+
+    private void advanceFrame() {
+        mCurrentTime += FRAME_MILLIS;
+        mReport.frames += 1;
+
+        for (FakePageLoader.PendingPage pendingPage : mPageLoader.collectDuePages(mCurrentTime)) {
+            deliver(pendingPage);
+        }
+
+        drainPageArchive();
+
+        checkItemIds();
+    }
+
+    //archive work runs on the archive executor and reports back on the main thread.
+    //wait for both so a page queued in one frame is archived or recalled by the next
+    private void drainPageArchive() {
+        if (mPageCodec == null) return;
+
+        FutureTask<Void> archiveBarrier = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, null);
+        AppExecutors.getInstance().archiveIO().execute(archiveBarrier);
+
+        try {
+            archiveBarrier.get();
+
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AssertionError(e);
+        }
+
+        ShadowLooper.idleMainLooper();
+    }
+
+    private void deliver(FakePageLoader.PendingPage pendingPage) {
+        mReport.pagesDelivered += 1;
+
+        if (!mStack.isBlockResident(pendingPage.blockNumber)) {
+            mReport.evictedBlockResults += 1;
+            mReport.wastedRequests += 1;
+
+        } else if (pendingPage.dataList == null) {
+            mReport.failedRequests += 1;
+            mReport.wastedRequests += 1;
+
+        } else if (pendingPage.dataList.isEmpty()) {
+            mReport.emptyPages += 1;
+            mReport.wastedRequests += 1;
+
+        } else {
+            mReport.resolvedItems += pendingPage.dataList.size();
+        }
+
+        mStack.stackPage(pendingPage.blockNumber, pendingPage.pageNumber, pendingPage.dataList,
+                pendingPage.stackOperation);
+    }
+
+    private void settle() {
+        reportVisibleRange();
+        mStack.onScrollStateChanged(mRecyclerView, RecyclerView.SCROLL_STATE_IDLE);
+
+        //blocks are added and evicted when scrolling settles
+        checkItemIds();
+    }
+
+    //a loaded item's stable id must be its position in the full list, which is also its value
+    private void checkItemIds() {
+        List adapterData = mAdapter.getAdapterData();
+
+        for (int position = 0; position < adapterData.size(); position++) {
+            Object item = adapterData.get(position);
+
+            if (item instanceof Integer && mAdapter.getItemId(position) != (Integer) item) {
+                mReport.mismatchedItemIds += 1;
+            }
+        }
+    }
+
+    private void reportVisibleRange() {
+        if (getItemCount() == 0) {
+            mStack.onVisibleRangeChanged(RecyclerView.NO_POSITION, RecyclerView.NO_POSITION);
+            return;
+        }
+
+        mStack.onVisibleRangeChanged(getFirstVisibleAdapterPosition(),
+                getLastVisibleAdapterPosition());
+    }
+
+    private void measureVisibleItems() {
+        if (getItemCount() == 0) return;
+
+        List adapterData = mAdapter.getAdapterData();
+        int lastPosition = getLastVisibleAdapterPosition();
+
+        for (int position = getFirstVisibleAdapterPosition(); position <= lastPosition; position++) {
+            mReport.visibleItemFrames += 1;
+
+            if (adapterData.get(position) == mPreloadObject) {
+                mReport.placeholderItemFrames += 1;
+            }
+        }
+    }
+
+    private void finishReport() {
+        mReport.simulatedMillis = mCurrentTime;
+        mReport.requestsIssued = mPageLoader.getRequestsIssued();
+        mReport.repeatedRequests = mPageLoader.getRepeatedRequests();
+
+        mReport.insertNotifications = mAdapter.insertNotifications;
+        mReport.insertedItems = mAdapter.insertedItems;
+        mReport.removeNotifications = mAdapter.removeNotifications;
+        mReport.removedItems = mAdapter.removedItems;
+        mReport.changeNotifications = mAdapter.changeNotifications;
+        mReport.changedItems = mAdapter.changedItems;
+        mReport.changesWithoutPayload = mAdapter.changesWithoutPayload;
+        mReport.dataSetChangedNotifications = mAdapter.dataSetChangedNotifications;
+        mReport.outOfRangeNotifications = mAdapter.outOfRangeNotifications;
+        mReport.adapterSizeDrift = getItemCount() - mAdapter.notifiedItemCount;
+
+        //loaded items are their own position in the full list
+        List adapterData = mAdapter.getAdapterData();
+        int itemsAbove = getItemsAbove();
+        for (int position = 0; position < adapterData.size(); position++) {
+            Object item = adapterData.get(position);
+
+            if (item instanceof Integer && (Integer) item != itemsAbove + position) {
+                mReport.misplacedItems += 1;
+
+            } else if (item == mPreloadObject) {
+                mReport.unresolvedItems += 1;
+            }
+        }
+    }
+
+    //worked out from the block structure rather than Stack.getItemId() so positions are not
+    //checked with the code under test. every block above the first resident block is full
+    private int getItemsAbove() {
+        return mStack.saveBlockStructure()[0] * mPageCapacity * mBlockPageCapacity;
+    }
+
+    private int getItemCount() {
+        return mAdapter.getAdapterData().size();
+    }
+
+    private int getFirstVisibleAdapterPosition() {
+        return Math.max(0, Math.min(getItemCount() - 1, mFirstVisible - getItemsAbove()));
+    }
+
+    private int getLastVisibleAdapterPosition() {
+        return Math.min(getItemCount() - 1,
+                getFirstVisibleAdapterPosition() + mVisibleItemCount - 1);
+    }
+}
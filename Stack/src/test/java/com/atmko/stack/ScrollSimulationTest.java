@@ -0,0 +1,296 @@
+package com.atmko.stack;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Soak runs of {@link Stack} through {@link ScrollSimulation}. Failing assertions include the
+ * full report.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ScrollSimulationTest {
+    private static final int PAGE_CAPACITY = 20;
+    private static final int BLOCK_PAGE_CAPACITY = 2;
+    private static final int BLOCK_LIMIT = 3;
+    private static final int TOTAL_PAGES = 50;
+    private static final int VISIBLE_ITEM_COUNT = 10;
+    private static final int ITEMS_PER_FRAME = 8;
+    private static final int LAST_POSITION = PAGE_CAPACITY * TOTAL_PAGES - VISIBLE_ITEM_COUNT;
+
+    //feed that ends on a short page. an odd page count leaves the last block's second page empty
+    private static final int SHORT_FEED_TOTAL_PAGES = 49;
+    private static final int LAST_PAGE_ITEM_COUNT = 7;
+    private static final int SHORT_FEED_LAST_POSITION = PAGE_CAPACITY * (SHORT_FEED_TOTAL_PAGES - 1)
+            + LAST_PAGE_ITEM_COUNT - VISIBLE_ITEM_COUNT;
+
+    //room for one and a half blocks of items
+    private static final long SMALL_MEMORY_BUDGET = PAGE_CAPACITY * BLOCK_PAGE_CAPACITY * 3 / 2;
+
+    private static final Stack.ItemSizeEstimator UNIT_ITEM_SIZE_ESTIMATOR =
+            new Stack.ItemSizeEstimator() {
+                @Override
+                public long estimateSize(Object item) {
+                    return 1;
+                }
+            };
+
+    //large enough to keep every evicted page
+    private static final long MAX_ARCHIVE_BYTES = 1024 * 1024;
+
+    //serializes pages and counts decodes, which run on the archive executor
+    private static class CountingPageCodec implements Stack.PageCodec {
+        private final Stack.PageCodec mPageCodec = new PageArchive.SerializablePageCodec();
+        private final boolean mFailsToDecode;
+        volatile int decodedPages;
+
+        CountingPageCodec(boolean failsToDecode) {
+            this.mFailsToDecode = failsToDecode;
+        }
+
+        @Override
+        public byte[] encode(List dataList) throws IOException {
+            return mPageCodec.encode(dataList);
+        }
+
+        @Override
+        public List decode(byte[] bytes) throws IOException {
+            decodedPages += 1;
+
+            if (mFailsToDecode) throw new IOException("Page could not be decoded");
+            return mPageCodec.decode(bytes);
+        }
+    }
+
+    private ScrollSimulation createSimulation(long seed) {
+        return createSimulation(TOTAL_PAGES, seed);
+    }
+
+    private ScrollSimulation createSimulation(int totalPages, long seed) {
+        return new ScrollSimulation(PAGE_CAPACITY, BLOCK_PAGE_CAPACITY, BLOCK_LIMIT, totalPages,
+                VISIBLE_ITEM_COUNT, ITEMS_PER_FRAME, seed);
+    }
+
+    private ScrollSimulation createShortFeedSimulation(long seed) {
+        ScrollSimulation scrollSimulation = createSimulation(SHORT_FEED_TOTAL_PAGES, seed);
+        scrollSimulation.setLastPageItemCount(LAST_PAGE_ITEM_COUNT);
+
+        return scrollSimulation;
+    }
+
+    private ScrollSimulation createUnreliableSimulation(long seed) {
+        return makeUnreliable(createSimulation(seed));
+    }
+
+    private ScrollSimulation makeUnreliable(ScrollSimulation scrollSimulation) {
+        scrollSimulation.setLatencyModel(FakePageLoader.longTailLatency(120, 0.1, 2000));
+        scrollSimulation.setFailureRate(0.05);
+
+        return scrollSimulation;
+    }
+
+    private void assertConsistent(SimulationReport report) {
+        assertEquals(report.toString(), 0, report.outOfRangeNotifications);
+        assertEquals(report.toString(), 0, report.adapterSizeDrift);
+        assertEquals(report.toString(), 0, report.misplacedItems);
+        assertEquals(report.toString(), 0, report.mismatchedItemIds);
+        //every change stack sends is a preload object swap, so each must carry the payload
+        assertTrue(report.toString(), report.changeNotifications > 0);
+        assertEquals(report.toString(), 0, report.changesWithoutPayload);
+    }
+
+    @Test
+    public void scriptedScroll_withoutLatency_keepsItemsInPlace() {
+        ScrollSimulation scrollSimulation = createSimulation(1);
+
+        SimulationReport report = scrollSimulation.run(new ScrollTrace()
+                .scrollTo(300)
+                .rotate()
+                .scrollTo(0)
+                .scrollTo(LAST_POSITION));
+
+        assertTrue(report.toString(), report.resolvedItems > 0);
+        assertEquals(report.toString(), 0, report.failedRequests);
+        assertConsistent(report);
+    }
+
+    @Test
+    public void randomizedScroll_withSameSeed_producesSameReport() {
+        long seed = 29;
+
+        SimulationReport firstReport = createUnreliableSimulation(seed).run(
+                ScrollTrace.randomized(new Random(seed), 40, LAST_POSITION, 0.1));
+        SimulationReport secondReport = createUnreliableSimulation(seed).run(
+                ScrollTrace.randomized(new Random(seed), 40, LAST_POSITION, 0.1));
+
+        assertTrue(firstReport.toString(), firstReport.requestsIssued > 0);
+        assertEquals(firstReport.toString(), secondReport.toString());
+    }
+
+    @Test
+    public void randomizedScroll_withSlowAndFailingLoads_keepsItemsInPlace() {
+        for (long seed = 0; seed < 10; seed++) {
+            SimulationReport report = createUnreliableSimulation(seed).run(
+                    ScrollTrace.randomized(new Random(seed), 40, LAST_POSITION, 0.1));
+
+            //results for evicted blocks, overlapping loads and rotations must not move items
+            assertTrue(report.toString(), report.evictedBlockResults > 0);
+            assertConsistent(report);
+        }
+    }
+
+    @Test
+    public void randomizedScroll_withMemoryBudget_keepsItemsInPlace() {
+        for (long seed = 0; seed < 10; seed++) {
+            ScrollSimulation scrollSimulation = createUnreliableSimulation(seed);
+
+            //room for about two and a half blocks of items
+            scrollSimulation.setMemoryBudget(
+                    PAGE_CAPACITY * BLOCK_PAGE_CAPACITY * 5 / 2, UNIT_ITEM_SIZE_ESTIMATOR);
+
+            SimulationReport report = scrollSimulation.run(
+                    ScrollTrace.randomized(new Random(seed), 40, LAST_POSITION, 0.1));
+
+            assertConsistent(report);
+        }
+    }
+
+    @Test
+    public void scriptedScroll_toShortLastPage_removesTrailingPlaceholders() {
+        SimulationReport report = createShortFeedSimulation(1).run(new ScrollTrace()
+                .scrollTo(SHORT_FEED_LAST_POSITION)
+                .scrollTo(0)
+                .scrollTo(SHORT_FEED_LAST_POSITION));
+
+        assertTrue(report.toString(), report.emptyPages > 0);
+        assertEquals(report.toString(), 0, report.stalledScrolls);
+        assertEquals(report.toString(), 0, report.unresolvedItems);
+        assertConsistent(report);
+    }
+
+    @Test
+    public void randomizedScroll_toShortLastPage_keepsItemsInPlace() {
+        for (long seed = 0; seed < 10; seed++) {
+            //short and empty pages can arrive in any order relative to the pages above them
+            SimulationReport report = makeUnreliable(createShortFeedSimulation(seed)).run(
+                    ScrollTrace.randomized(new Random(seed), 40, SHORT_FEED_LAST_POSITION, 0.1)
+                            .scrollTo(SHORT_FEED_LAST_POSITION));
+
+            assertConsistent(report);
+        }
+    }
+
+    @Test
+    public void scriptedScroll_withMemoryBudgetUnderTwoBlocks_reachesEveryTarget() {
+        ScrollSimulation scrollSimulation = createSimulation(1);
+        scrollSimulation.setMemoryBudget(SMALL_MEMORY_BUDGET, UNIT_ITEM_SIZE_ESTIMATOR);
+
+        SimulationReport report = scrollSimulation.run(new ScrollTrace()
+                .scrollTo(300)
+                .trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+                .scrollTo(0)
+                .trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+                .scrollTo(LAST_POSITION));
+
+        //blocks staged next to the visible items must survive trimming
+        assertEquals(report.toString(), 0, report.stalledScrolls);
+        assertEquals(report.toString(), 0, report.unresolvedItems);
+        assertConsistent(report);
+    }
+
+    @Test
+    public void randomizedScroll_withMemoryBudgetUnderTwoBlocksAndTrimEvents_keepsItemsInPlace() {
+        for (long seed = 0; seed < 10; seed++) {
+            ScrollSimulation scrollSimulation = createUnreliableSimulation(seed);
+            scrollSimulation.setMemoryBudget(SMALL_MEMORY_BUDGET, UNIT_ITEM_SIZE_ESTIMATOR);
+
+            SimulationReport report = scrollSimulation.run(
+                    ScrollTrace.randomized(new Random(seed), 40, LAST_POSITION, 0.1, 0.1));
+
+            assertTrue(report.toString(), report.trimMemoryEvents > 0);
+            assertEquals(report.toString(), 0, report.stalledScrolls);
+            assertConsistent(report);
+        }
+    }
+
+    @Test
+    public void scriptedScroll_withPageArchive_recallsEvictedPagesWithoutLoader() {
+        CountingPageCodec pageCodec = new CountingPageCodec(false);
+        ScrollSimulation scrollSimulation = createSimulation(1);
+        scrollSimulation.setPageArchive(MAX_ARCHIVE_BYTES, pageCodec);
+
+        //top blocks are evicted on the way down and added again on the way up
+        SimulationReport report = scrollSimulation.run(new ScrollTrace()
+                .scrollTo(300)
+                .scrollTo(0));
+
+        assertTrue(report.toString(), pageCodec.decodedPages > 0);
+        assertEquals(report.toString(), 0, report.repeatedRequests);
+        assertEquals(report.toString(), 0, report.unresolvedItems);
+        assertConsistent(report);
+    }
+
+    @Test
+    public void scriptedScroll_withUndecodablePages_fallsBackToLoader() {
+        CountingPageCodec pageCodec = new CountingPageCodec(true);
+        ScrollSimulation scrollSimulation = createSimulation(1);
+        scrollSimulation.setPageArchive(MAX_ARCHIVE_BYTES, pageCodec);
+
+        SimulationReport report = scrollSimulation.run(new ScrollTrace()
+                .scrollTo(300)
+                .scrollTo(0));
+
+        //every recall failed, so each page of a re-added block was loaded again
+        assertTrue(report.toString(), pageCodec.decodedPages > 0);
+        assertEquals(report.toString(), pageCodec.decodedPages, report.repeatedRequests);
+        assertEquals(report.toString(), 0, report.stalledScrolls);
+        assertEquals(report.toString(), 0, report.unresolvedItems);
+        assertConsistent(report);
+    }
+
+    @Test
+    public void scriptedScroll_withArchiveReleasedDuringRecall_loadsPagesInstead() {
+        ScrollSimulation scrollSimulation = createSimulation(1);
+        scrollSimulation.setPageArchive(MAX_ARCHIVE_BYTES, new CountingPageCodec(false));
+
+        //stopping on the first item of a block at the top of the stack stages the evicted block
+        //above it, so its pages are still being recalled when the archive is released
+        SimulationReport report = scrollSimulation.run(new ScrollTrace()
+                .scrollTo(300)
+                .scrollTo(PAGE_CAPACITY * BLOCK_PAGE_CAPACITY * 5)
+                .trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+                .scrollTo(PAGE_CAPACITY * BLOCK_PAGE_CAPACITY * 5 - VISIBLE_ITEM_COUNT));
+
+        assertEquals(report.toString(), 0, report.unresolvedItems);
+        assertConsistent(report);
+    }
+
+    @Test
+    public void randomizedScroll_withPageArchiveAndTrimEvents_resolvesEveryPage() {
+        for (long seed = 0; seed < 10; seed++) {
+            ScrollSimulation scrollSimulation = createSimulation(seed);
+            scrollSimulation.setLatencyModel(FakePageLoader.longTailLatency(120, 0.1, 2000));
+            scrollSimulation.setPageArchive(MAX_ARCHIVE_BYTES, new CountingPageCodec(false));
+
+            //trims release the archive while pages are being recalled.
+            //those pages must come from the loader instead of staying preload objects
+            SimulationReport report = scrollSimulation.run(
+                    ScrollTrace.randomized(new Random(seed), 40, LAST_POSITION, 0.1, 0.2));
+
+            assertTrue(report.toString(), report.trimMemoryEvents > 0);
+            assertEquals(report.toString(), 0, report.stalledScrolls);
+            assertEquals(report.toString(), 0, report.unresolvedItems);
+            assertConsistent(report);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 Aayat Mimiko
+ */
+
+package com.atmko.stack;
+
+import android.content.ComponentCallbacks2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+//sequence of scrolls, configuration changes and memory pressure for ScrollSimulation to play back
+class ScrollTrace {
+    private final List<Event> mEvents;
+
+    ScrollTrace() {
+        this.mEvents = new ArrayList<>();
+    }
+
+    //scroll until the first visible item is targetPosition in the full list
+    ScrollTrace scrollTo(int targetPosition) {
+        mEvents.add(new Event(Event.SCROLL, targetPosition, 0));
+        return this;
+    }
+
+    //recreate stack from its saved block structure, as after a rotation
+    ScrollTrace rotate() {
+        mEvents.add(new Event(Event.ROTATION, 0, 0));
+        return this;
+    }
+
+    //forward a ComponentCallbacks2 trim memory level to the stack
+    ScrollTrace trimMemory(int level) {
+        mEvents.add(new Event(Event.TRIM_MEMORY, 0, level));
+        return this;
+    }
+
+    static ScrollTrace randomized(Random random, int eventCount, int maxPosition,
+                                  double rotationChance) {
+        return randomized(random, eventCount, maxPosition, rotationChance, 0);
+    }
+
+    static ScrollTrace randomized(Random random, int eventCount, int maxPosition,
+                                  double rotationChance, double trimMemoryChance) {
+        int[] trimMemoryLevels = {
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+                ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+                ComponentCallbacks2.TRIM_MEMORY_COMPLETE};
+
+        ScrollTrace scrollTrace = new ScrollTrace();
+
+        for (int i = 0; i < eventCount; i++) {
+            if (random.nextDouble() < rotationChance) {
+                scrollTrace.rotate();
+
+            } else if (trimMemoryChance > 0 && random.nextDouble() < trimMemoryChance) {
+                scrollTrace.trimMemory(trimMemoryLevels[random.nextInt(trimMemoryLevels.length)]);
+
+            } else {
+                scrollTrace.scrollTo(random.nextInt(maxPosition + 1));
+            }
+        }
+
+        return scrollTrace;
+    }
+
+    List<Event> getEvents() {
+        return Collections.unmodifiableList(mEvents);
+    }
+
+    static class Event {
+        static final int SCROLL = 0;
+        static final int ROTATION = 1;
+        static final int TRIM_MEMORY = 2;
+
+        final int type;
+        final int targetPosition;
+        final int trimMemoryLevel;
+
+        Event(int type, int targetPosition, int trimMemoryLevel) {
+            this.type = type;
+            this.targetPosition = targetPosition;
+            this.trimMemoryLevel = trimMemoryLevel;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 Aayat Mimiko
+ */
+
+package com.atmko.stack;
+
+import java.util.Locale;
+
+//measurements collected from one ScrollSimulation run
+class SimulationReport {
+    long simulatedMillis;
+    int frames;
+    int rotations;
+    int trimMemoryEvents;
+    //scrolls that gave up at the edge of loaded items before reaching their target
+    int stalledScrolls;
+
+    //loader
+    int requestsIssued;
+    //requests for pages the loader had already been asked for, such as pages of evicted blocks
+    int repeatedRequests;
+    int pagesDelivered;
+    int resolvedItems;
+    //requests whose results were thrown away: block evicted, request failed or page past the end
+    int wastedRequests;
+    int evictedBlockResults;
+    int failedRequests;
+    int emptyPages;
+
+    //visible items, counted once per frame
+    long visibleItemFrames;
+    long placeholderItemFrames;
+
+    //adapter notifications
+    int insertNotifications;
+    int insertedItems;
+    int removeNotifications;
+    int removedItems;
+    int changeNotifications;
+    int changedItems;
+    //change notifications for resolved preload objects sent without the placeholder payload
+    int changesWithoutPayload;
+    int dataSetChangedNotifications;
+    int outOfRangeNotifications;
+    //difference between the adapter's item count and the count implied by its notifications
+    int adapterSizeDrift;
+    //loaded items at the wrong adapter position at the end of the run
+    int misplacedItems;
+    //preload objects left in the adapter at the end of the run
+    int unresolvedItems;
+    //loaded items whose stable id was not their full list position, checked after every frame
+    int mismatchedItemIds;
+
+    //loaded items per simulated second
+    double getThroughput() {
+        if (simulatedMillis == 0) return 0;
+        return resolvedItems * 1000.0 / simulatedMillis;
+    }
+
+    //fraction of visible items that were preload objects
+    double getPlaceholderExposure() {
+        if (visibleItemFrames == 0) return 0;
+        return (double) placeholderItemFrames / visibleItemFrames;
+    }
+
+    int getAdapterOperations() {
+        return insertNotifications + removeNotifications + changeNotifications
+                + dataSetChangedNotifications;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "simulated %dms over %d frames, %d rotations, %d trim memory events,"
+                        + " %d stalled scrolls%n"
+                        + "throughput: %.1f items/s%n"
+                        + "placeholder exposure: %.2f%%%n"
+                        + "requests: %d issued, %d repeated, %d delivered, %d wasted"
+                        + " (%d evicted block, %d failed, %d empty)%n"
+                        + "adapter operations: %d (%d inserts/%d items, %d removes/%d items,"
+                        + " %d changes/%d items, %d without payload, %d full refreshes)%n"
+                        + "consistency: %d out of range notifications, %d size drift,"
+                        + " %d misplaced items, %d mismatched item ids, %d unresolved items",
+                simulatedMillis, frames, rotations, trimMemoryEvents, stalledScrolls,
+                getThroughput(),
+                getPlaceholderExposure() * 100,
+                requestsIssued, repeatedRequests, pagesDelivered, wastedRequests,
+                evictedBlockResults, failedRequests, emptyPages,
+                getAdapterOperations(), insertNotifications, insertedItems,
+                removeNotifications, removedItems, changeNotifications, changedItems,
+                changesWithoutPayload, dataSetChangedNotifications,
+                outOfRangeNotifications, adapterSizeDrift, misplacedItems, mismatchedItemIds,
+                unresolvedItems);
+    }
+}
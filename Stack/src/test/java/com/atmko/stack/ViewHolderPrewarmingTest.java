@@ -0,0 +1,113 @@
+package com.atmko.stack;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ViewHolderPrewarmingTest {
+    private static final int PAGE_CAPACITY = 20;
+    private static final int BLOCK_PAGE_CAPACITY = 2;
+    private static final int BLOCK_LIMIT = 3;
+    private static final int TOTAL_PAGES = 10;
+
+    private RecyclerView mRecyclerView;
+    private FakeStackAdapter mAdapter;
+    private FakePageLoader mPageLoader;
+    private Stack mStack;
+
+    //loads the first block with pre-warming on and view holders created on the main thread
+    private void setUpStack(FakeStackAdapter adapter) {
+        mRecyclerView = new RecyclerView(ApplicationProvider.getApplicationContext());
+        mAdapter = adapter;
+        mPageLoader = new FakePageLoader(1, PAGE_CAPACITY, TOTAL_PAGES, new Random(0));
+
+        mStack = new Stack(false, BLOCK_LIMIT,
+                new Stack.PagingBlockTemplate(mPageLoader, PAGE_CAPACITY, BLOCK_PAGE_CAPACITY),
+                new Object(), mRecyclerView, mAdapter, false);
+        mAdapter.setStack(mStack);
+
+        mStack.setViewHolderPrewarming(true, false);
+        mStack.initialize();
+        mStack.setTotalPages(TOTAL_PAGES);
+
+        deliverPages();
+    }
+
+    private void deliverPages() {
+        for (FakePageLoader.PendingPage pendingPage : mPageLoader.collectDuePages(0)) {
+            mStack.stackPage(pendingPage.blockNumber, pendingPage.pageNumber,
+                    pendingPage.dataList, pendingPage.stackOperation);
+        }
+    }
+
+    //scrolls to the last item and lets stack stage the next block
+    private void stageNextBlock(int visibleItemCount) {
+        int lastPosition = mAdapter.getItemCount() - 1;
+
+        mStack.onVisibleRangeChanged(lastPosition - visibleItemCount + 1, lastPosition);
+        mStack.onScrollStateChanged(mRecyclerView, RecyclerView.SCROLL_STATE_IDLE);
+
+        //run view holder creation posted to the main thread
+        ShadowLooper.idleMainLooper();
+    }
+
+    @Test
+    public void stagingBlock_prewarmsOneScreenOfViewHolders() {
+        setUpStack(new FakeStackAdapter());
+
+        //more than the pool keeps by default
+        stageNextBlock(8);
+
+        assertEquals(8, mRecyclerView.getRecycledViewPool().getRecycledViewCount(0));
+    }
+
+    @Test
+    public void stagingBlock_prewarmsEachViewTypeByItsShareOfLoadedItems() {
+        //every fourth item has its own view type
+        setUpStack(new FakeStackAdapter() {
+            @Override
+            public int getItemViewType(int position) {
+                Object item = getAdapterData().get(position);
+                return item instanceof Integer && (Integer) item % 4 == 0 ? 1 : 0;
+            }
+        });
+
+        stageNextBlock(8);
+
+        RecyclerView.RecycledViewPool recycledViewPool = mRecyclerView.getRecycledViewPool();
+        assertEquals(6, recycledViewPool.getRecycledViewCount(0));
+        assertEquals(2, recycledViewPool.getRecycledViewCount(1));
+    }
+
+    @Test
+    public void stagingBlock_keepsRecycledViewMaxSetByApp() {
+        setUpStack(new FakeStackAdapter());
+
+        RecyclerView.RecycledViewPool recycledViewPool = mRecyclerView.getRecycledViewPool();
+        recycledViewPool.setMaxRecycledViews(0, 20);
+        for (int i = 0; i < 3; i++) {
+            recycledViewPool.putRecycledView(mAdapter.createViewHolder(mRecyclerView, 0));
+        }
+
+        //one view holder short of a screen that fits in the default pool
+        stageNextBlock(4);
+        assertEquals(4, recycledViewPool.getRecycledViewCount(0));
+
+        //pool still has room for the app's max
+        for (int i = 0; i < 10; i++) {
+            recycledViewPool.putRecycledView(mAdapter.createViewHolder(mRecyclerView, 0));
+        }
+        assertEquals(14, recycledViewPool.getRecycledViewCount(0));
+    }
+}